@@ -0,0 +1,433 @@
+package hw3;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import api.Direction;
+
+/**
+ * Encodes the state of a <code>Game</code> into a fixed-width record of
+ * bytes and loads such records back into existing games.  All games
+ * handled by one codec must have the grid size given to its constructor,
+ * so every record has the same length, <code>getRecordSize()</code>.
+ * <p>
+ * Tile values are stored as 4-bit codes: 0, 1 and 2 are stored as
+ * themselves, and a value 3 times 2 to the power N is stored as N + 3.
+ * Values above 3 times 2 to the 12th (12288) cannot be encoded.  A record
+ * consists of the following fields, in order:
+ * <ul>
+ *   <li>the grid, two cells per byte, row by row, the first cell of each
+ *   pair in the high four bits
+ *   <li>the grid saved for <code>undo()</code>, in the same form; all zero
+ *   unless a shift is pending
+ *   <li>one byte, the code of the next tile value
+ *   <li>one byte of flags: bit 0 is set if a shift is pending, bits 1 and 2
+ *   hold the ordinal of its direction, and bit 3 is set if the random
+ *   number generator's state is present
+ *   <li>four bytes, the score
+ *   <li>eight bytes, the state of the game's <code>CheckpointRandom</code>,
+ *   or zero if the game uses some other kind of <code>Random</code>
+ * </ul>
+ * The score and generator state are written in the byte order of the
+ * buffer, which is big-endian unless the caller changes it.
+ * <p>
+ * Records are read and written starting at the buffer's position, which
+ * is advanced past each complete record.  No objects are created while
+ * encoding or decoding, and decoding writes directly into the grids of
+ * the given game.
+ *
+ * @author BennyOoi
+ */
+public class BoardCodec
+{
+	/**
+	 * Largest code that fits in four bits
+	 * */
+	private static final int MAX_CODE = 15;
+	/**
+	 * Flag bit set when a shift is pending
+	 * */
+	private static final int FLAG_PENDING = 1;
+	/**
+	 * Position of the pending direction's ordinal within the flags
+	 * */
+	private static final int DIRECTION_SHIFT = 1;
+	/**
+	 * Flag bit set when the random number generator's state is present
+	 * */
+	private static final int FLAG_RANDOM = 8;
+	/**
+	 * Directions indexed by ordinal
+	 * */
+	private static final Direction[] DIRECTIONS = Direction.values();
+	/**
+	 * Grid size of the games handled by this codec
+	 * */
+	private final int size;
+	/**
+	 * Number of bytes holding one grid
+	 * */
+	private final int gridBytes;
+	/**
+	 * Number of bytes in one record
+	 * */
+	private final int recordSize;
+
+  /**
+   * Constructs a codec for games with the given grid size.
+   * @param givenSize
+   *   size of the grid of the games to encode
+   */
+  public BoardCodec(int givenSize)
+  {
+	  if(givenSize < 1)
+	  {
+		  throw new IllegalArgumentException("Grid size must be positive: " + givenSize);
+	  }
+	  size = givenSize;
+	  gridBytes = (size * size + 1) / 2;
+	  recordSize = 2 * gridBytes + 14;
+  }
+
+  /**
+   * Returns the grid size of the games handled by this codec.
+   * @return
+   *   grid size
+   */
+  public int getSize()
+  {
+	  return size;
+  }
+
+  /**
+   * Returns the number of bytes in one encoded game.
+   * @return
+   *   record size in bytes
+   */
+  public int getRecordSize()
+  {
+	  return recordSize;
+  }
+
+  /**
+   * Returns the 4-bit code for the given tile value.
+   * @param value
+   *   tile value
+   * @return
+   *   code for the value
+   * @throws IllegalArgumentException
+   *   if the value is not a tile value or is too large to encode
+   */
+  public static int encodeValue(int value)
+  {
+	  if(value >= 0 && value <= 2)
+	  {
+		  return value;
+	  }
+	  int n = Integer.numberOfTrailingZeros(value);
+	  if(value > 0 && value >> n == 3 && n + 3 <= MAX_CODE)
+	  {
+		  return n + 3;
+	  }
+	  throw new IllegalArgumentException("Cannot encode tile value " + value);
+  }
+
+  /**
+   * Returns the tile value for the given 4-bit code.
+   * @param code
+   *   code between 0 and 15
+   * @return
+   *   tile value for the code
+   */
+  public static int decodeValue(int code)
+  {
+	  if(code <= 2)
+	  {
+		  return code;
+	  }
+	  return 3 << (code - 3);
+  }
+
+  /**
+   * Writes one record for the given game at the buffer's position.  If the
+   * game cannot be encoded, nothing is written and the position is unchanged.
+   * @param game
+   *   game to encode
+   * @param dst
+   *   buffer to write to
+   * @throws IllegalArgumentException
+   *   if the game's grid size differs from this codec's, or a tile value
+   *   cannot be encoded
+   * @throws BufferOverflowException
+   *   if fewer than <code>getRecordSize()</code> bytes remain in the buffer
+   */
+  public void encode(Game game, ByteBuffer dst)
+  {
+	  checkSize(game);
+	  if(dst.remaining() < recordSize)
+	  {
+		  throw new BufferOverflowException();
+	  }
+	  int base = dst.position();
+	  Direction pending = game.getPendingMove();
+	  int nextCode = encodeValue(game.getNextTileValue());
+	  checkGrid(game, false);
+	  if(pending != null)
+	  {
+		  checkGrid(game, true);
+	  }
+	  putGrid(game, false, dst, base);
+	  if(pending != null)
+	  {
+		  putGrid(game, true, dst, base + gridBytes);
+	  }
+	  else
+	  {
+		  for(int i = 0; i < gridBytes; i++)
+		  {
+			  dst.put(base + gridBytes + i, (byte) 0);
+		  }
+	  }
+
+	  int flags = 0;
+	  long state = 0;
+	  if(pending != null)
+	  {
+		  flags |= FLAG_PENDING | pending.ordinal() << DIRECTION_SHIFT;
+	  }
+	  if(game.getRandom() instanceof CheckpointRandom)
+	  {
+		  flags |= FLAG_RANDOM;
+		  state = ((CheckpointRandom) game.getRandom()).getState();
+	  }
+	  int pos = base + 2 * gridBytes;
+	  dst.put(pos, (byte) nextCode);
+	  dst.put(pos + 1, (byte) flags);
+	  dst.putInt(pos + 2, game.getScore());
+	  dst.putLong(pos + 6, state);
+	  dst.position(base + recordSize);
+  }
+
+  /**
+   * Writes records for <code>len</code> consecutive games of the given
+   * array, starting at the buffer's position.  If a game cannot be encoded,
+   * the records of the games before it have been written.
+   * @param games
+   *   games to encode
+   * @param offset
+   *   index of the first game to encode
+   * @param len
+   *   number of games to encode
+   * @param dst
+   *   buffer to write to
+   * @throws IllegalArgumentException
+   *   if a game's grid size differs from this codec's, or a tile value
+   *   cannot be encoded
+   * @throws IndexOutOfBoundsException
+   *   if <code>offset</code> and <code>len</code> do not describe a range
+   *   within <code>games</code>
+   * @throws BufferOverflowException
+   *   if the buffer cannot hold all the records; nothing is written
+   */
+  public void encodeAll(Game[] games, int offset, int len, ByteBuffer dst)
+  {
+	  Objects.checkFromIndexSize(offset, len, games.length);
+	  if(dst.remaining() / recordSize < len)
+	  {
+		  throw new BufferOverflowException();
+	  }
+	  for(int i = offset; i < offset + len; i++)
+	  {
+		  encode(games[i], dst);
+	  }
+  }
+
+  /**
+   * Reads one record at the buffer's position into the given game,
+   * replacing its grid, score, next tile value, pending shift and, if
+   * present in the record, the state of its random number generator.  If
+   * the record cannot be loaded, the game and the position are unchanged.
+   * @param src
+   *   buffer to read from
+   * @param game
+   *   game to load the record into
+   * @throws IllegalArgumentException
+   *   if the game's grid size differs from this codec's, or the record
+   *   contains a generator state and the game does not use a
+   *   <code>CheckpointRandom</code>
+   * @throws BufferUnderflowException
+   *   if fewer than <code>getRecordSize()</code> bytes remain in the buffer
+   */
+  public void decode(ByteBuffer src, Game game)
+  {
+	  checkSize(game);
+	  if(src.remaining() < recordSize)
+	  {
+		  throw new BufferUnderflowException();
+	  }
+	  int base = src.position();
+	  int pos = base + 2 * gridBytes;
+	  int flags = src.get(pos + 1);
+	  if((flags & FLAG_RANDOM) != 0 && !(game.getRandom() instanceof CheckpointRandom))
+	  {
+		  throw new IllegalArgumentException("Record has a generator state but the game does not use CheckpointRandom");
+	  }
+
+	  Direction pending = null;
+	  if((flags & FLAG_PENDING) != 0)
+	  {
+		  pending = DIRECTIONS[(flags >> DIRECTION_SHIFT) & 3];
+	  }
+	  getGrid(src, base, game, false);
+	  if(pending != null)
+	  {
+		  getGrid(src, base + gridBytes, game, true);
+	  }
+	  if((flags & FLAG_RANDOM) != 0)
+	  {
+		  ((CheckpointRandom) game.getRandom()).setState(src.getLong(pos + 6));
+	  }
+	  game.restoreState(src.getInt(pos + 2), decodeValue(src.get(pos) & MAX_CODE), pending);
+	  src.position(base + recordSize);
+  }
+
+  /**
+   * Reads <code>len</code> consecutive records, starting at the buffer's
+   * position, into consecutive games of the given array.  If a record
+   * cannot be loaded, the games before it have been loaded.
+   * @param src
+   *   buffer to read from
+   * @param games
+   *   games to load the records into
+   * @param offset
+   *   index of the first game to load
+   * @param len
+   *   number of games to load
+   * @throws IllegalArgumentException
+   *   if a record cannot be loaded into its game
+   * @throws IndexOutOfBoundsException
+   *   if <code>offset</code> and <code>len</code> do not describe a range
+   *   within <code>games</code>
+   * @throws BufferUnderflowException
+   *   if the buffer does not hold all the records; nothing is loaded
+   */
+  public void decodeAll(ByteBuffer src, Game[] games, int offset, int len)
+  {
+	  Objects.checkFromIndexSize(offset, len, games.length);
+	  if(src.remaining() / recordSize < len)
+	  {
+		  throw new BufferUnderflowException();
+	  }
+	  for(int i = offset; i < offset + len; i++)
+	  {
+		  decode(src, games[i]);
+	  }
+  }
+
+  /**
+   * Checks that the given game has this codec's grid size.
+   * @param game
+   *   game to check
+   */
+  private void checkSize(Game game)
+  {
+	  if(game.getSize() != size)
+	  {
+		  throw new IllegalArgumentException("Expected grid size " + size + " but was " + game.getSize());
+	  }
+  }
+
+  /**
+   * Checks that every value in a game's grid, or in its saved grid, can be
+   * encoded.
+   * @param game
+   *   game whose grid to check
+   * @param saved
+   *   true to check the grid saved for undo, false for the current grid
+   */
+  private void checkGrid(Game game, boolean saved)
+  {
+	  for(int cell = 0; cell < size * size; cell++)
+	  {
+		  encodeValue(cellOf(game, saved, cell));
+	  }
+  }
+
+  /**
+   * Writes the codes of a game's grid, or of its saved grid, starting at
+   * the given index.
+   * @param game
+   *   game whose grid to write
+   * @param saved
+   *   true to write the grid saved for undo, false for the current grid
+   * @param dst
+   *   buffer to write to
+   * @param index
+   *   index in the buffer of the first byte
+   */
+  private void putGrid(Game game, boolean saved, ByteBuffer dst, int index)
+  {
+	  for(int cell = 0; cell < size * size; cell += 2)
+	  {
+		  int packed = encodeValue(cellOf(game, saved, cell)) << 4;
+		  if(cell + 1 < size * size)
+		  {
+			  packed |= encodeValue(cellOf(game, saved, cell + 1));
+		  }
+		  dst.put(index + cell / 2, (byte) packed);
+	  }
+  }
+
+  /**
+   * Loads the codes starting at the given index into a game's grid, or
+   * into its saved grid.
+   * @param src
+   *   buffer to read from
+   * @param index
+   *   index in the buffer of the first byte
+   * @param game
+   *   game whose grid to load
+   * @param saved
+   *   true to load the grid saved for undo, false for the current grid
+   */
+  private void getGrid(ByteBuffer src, int index, Game game, boolean saved)
+  {
+	  for(int cell = 0; cell < size * size; cell++)
+	  {
+		  int packed = src.get(index + cell / 2);
+		  int code = (cell % 2 == 0 ? packed >> 4 : packed) & MAX_CODE;
+		  int row = cell / size;
+		  int col = cell % size;
+		  if(saved)
+		  {
+			  game.setPrevCell(row, col, decodeValue(code));
+		  }
+		  else
+		  {
+			  game.loadCell(row, col, decodeValue(code));
+		  }
+	  }
+  }
+
+  /**
+   * Returns the value of a cell of a game's grid, or of its saved grid,
+   * given the cell's index in row-major order.
+   * @param game
+   *   game to read
+   * @param saved
+   *   true to read the grid saved for undo, false for the current grid
+   * @param cell
+   *   index of the cell
+   * @return
+   *   value in the cell
+   */
+  private int cellOf(Game game, boolean saved, int cell)
+  {
+	  if(saved)
+	  {
+		  return game.getPrevCell(cell / size, cell % size);
+	  }
+	  return game.getCell(cell / size, cell % size);
+  }
+}
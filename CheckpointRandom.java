@@ -0,0 +1,95 @@
+package hw3;
+
+import java.util.Random;
+
+/**
+ * A <code>java.util.Random</code> whose internal state can be read and 
+ * restored, so that a game can be saved and later resumed with the same 
+ * sequence of tile values and positions.  For any seed, the sequence of 
+ * values produced is identical to that of <code>java.util.Random</code>.
+ * <p>
+ * Only the 48-bit generator state is exposed; the value cached by
+ * <code>nextGaussian()</code> is not part of it.  Unlike 
+ * <code>java.util.Random</code>, instances are not safe for use by 
+ * multiple threads.
+ * 
+ * @author BennyOoi
+ */
+public class CheckpointRandom extends Random
+{
+	/**
+	 * Version of the serialized form
+	 * */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * Multiplier of the linear congruential generator used by java.util.Random
+	 * */
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	/**
+	 * Addend of the linear congruential generator used by java.util.Random
+	 * */
+	private static final long ADDEND = 0xBL;
+	/**
+	 * Mask keeping the low 48 bits of the state
+	 * */
+	private static final long MASK = (1L << 48) - 1;
+	/**
+	 * Current 48-bit generator state
+	 * */
+	private long state;
+
+  /**
+   * Constructs a generator with an unspecified seed, as
+   * <code>new Random()</code> does.
+   */
+  public CheckpointRandom()
+  {
+	  super();
+  }
+  
+  /**
+   * Constructs a generator with the given seed.
+   * @param seed
+   *   initial seed
+   */
+  public CheckpointRandom(long seed)
+  {
+	  super(seed);
+  }
+  
+  @Override
+  public void setSeed(long seed)
+  {
+	  // also called from the Random constructor, before any field initializer
+	  super.setSeed(seed);
+	  state = (seed ^ MULTIPLIER) & MASK;
+  }
+  
+  @Override
+  protected int next(int bits)
+  {
+	  state = (state * MULTIPLIER + ADDEND) & MASK;
+	  return (int) (state >>> (48 - bits));
+  }
+  
+  /**
+   * Returns the current generator state.
+   * @return
+   *   48-bit generator state
+   */
+  public long getState()
+  {
+	  return state;
+  }
+  
+  /**
+   * Restores a generator state previously returned by 
+   * <code>getState</code>.
+   * @param givenState
+   *   48-bit generator state; higher bits are ignored
+   */
+  public void setState(long givenState)
+  {
+	  state = givenState & MASK;
+  }
+}
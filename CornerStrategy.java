@@ -0,0 +1,57 @@
+package hw3;
+
+import java.util.Random;
+import api.Direction;
+
+/**
+ * Strategy that keeps large tiles in one corner by always choosing the
+ * first legal move from a fixed order of preference.  The default order, 
+ * LEFT, UP, RIGHT, DOWN, favors the top-left corner and only moves away
+ * from it when nothing else is possible.
+ * 
+ * @author BennyOoi
+ */
+public class CornerStrategy implements MoveStrategy
+{
+	/**
+	 * Directions in order of preference
+	 * */
+	private final Direction[] preference;
+
+  /**
+   * Constructs a strategy favoring the top-left corner.
+   */
+  public CornerStrategy()
+  {
+	  this(Direction.LEFT, Direction.UP, Direction.RIGHT, Direction.DOWN);
+  }
+  
+  /**
+   * Constructs a strategy that tries the given directions in order.
+   * @param givenPreference
+   *   directions in order of preference
+   */
+  public CornerStrategy(Direction... givenPreference)
+  {
+	  preference = givenPreference.clone();
+  }
+  
+  @Override
+  public String getName()
+  {
+	  return "corner";
+  }
+  
+  @Override
+  public Direction chooseMove(Game game, Random rand)
+  {
+	  for(Direction dir : preference)
+	  {
+		  if(game.isLegalMove(dir))
+		  {
+			  return dir;
+		  }
+	  }
+	  return null;
+  }
+}
@@ -1,7 +1,7 @@
 package hw3;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Objects;
 import java.util.Random;
 import api.Direction;
 import api.Move;
@@ -33,6 +33,12 @@ import api.TilePosition;
  * <p>
  * The score is the sum over all cells of the individual scores returned by
  * the <code>GameUtil</code>'s <code>getScoreForValue()</code> method.
+ * <p>
+ * The game also keeps features of the grid that clients query often: the
+ * number of empty cells, the largest tile, the legal moves and the number
+ * of adjacent pairs that could merge.  They are cached for each row and
+ * column and, whenever the grid changes, recomputed only for the rows and
+ * columns that contain a changed cell, so the getters take constant time.
  * 
  * @author BennyOoi
  */
@@ -78,11 +84,69 @@ public class Game
 	 * true if the grid is shifted, false otherwise
 	 */
 	private boolean shiftGrid;
+	/**
+	 * Scratch row or column reused by the bulk move methods
+	 */
+	private int[] lineBuffer;
+	/**
+	 * Number of empty cells in each row
+	 */
+	private int[] rowEmpty;
+	/**
+	 * Largest tile value in each row
+	 */
+	private int[] rowMax;
+	/**
+	 * Number of mergeable adjacent pairs within each row
+	 */
+	private int[] rowPairs;
+	/**
+	 * Number of mergeable adjacent pairs within each column
+	 */
+	private int[] colPairs;
+	/**
+	 * Bits, indexed by direction ordinal, of the directions that move each row
+	 */
+	private int[] rowMoves;
+	/**
+	 * Bits, indexed by direction ordinal, of the directions that move each column
+	 */
+	private int[] colMoves;
+	/**
+	 * Number of rows or columns moved by each direction, indexed by ordinal
+	 */
+	private int[] movableLines;
+	/**
+	 * true for each row containing a cell changed since the features were updated
+	 */
+	private boolean[] rowDirty;
+	/**
+	 * true for each column containing a cell changed since the features were updated
+	 */
+	private boolean[] colDirty;
+	/**
+	 * true if any cell changed since the features were updated
+	 */
+	private boolean dirty;
+	/**
+	 * Number of empty cells in the grid
+	 */
+	private int emptyCount;
+	/**
+	 * Largest tile value in the grid
+	 */
+	private int maxTile;
+	/**
+	 * Number of mergeable adjacent pairs in the grid
+	 */
+	private int mergeablePairs;
 
 	
   /**
    * Constructs a game with a grid of the given size, using a default
-   * random number generator. The initial grid is produced by the 
+   * random number generator.  The generator is a 
+   * <code>CheckpointRandom</code>, so the game's state can be saved 
+   * completely by <code>BoardCodec</code>. The initial grid is produced by the 
    * <code>initializeNewGrid</code> method of the given 
    * <code>GameUtil</code> object.  
    * @param givenSize
@@ -93,7 +157,7 @@ public class Game
   public Game(int givenSize, GameUtil givenConfig)
   {
     // just call the other constructor
-    this(givenSize, givenConfig, new Random());
+    this(givenSize, givenConfig, new CheckpointRandom());
   }
   
   /**
@@ -120,6 +184,18 @@ public class Game
 	  nextTileValue = config.generateRandomTileValue(rand);
 	  isUndo = false;
 	  shiftGrid = false;  
+	  lineBuffer = new int[size];
+	  rowEmpty = new int[size];
+	  rowMax = new int[size];
+	  rowPairs = new int[size];
+	  colPairs = new int[size];
+	  rowMoves = new int[size];
+	  colMoves = new int[size];
+	  movableLines = new int[Direction.values().length];
+	  rowDirty = new boolean[size];
+	  colDirty = new boolean[size];
+	  markAllDirty();
+	  updateFeatures();
   }
   
   /**
@@ -149,7 +225,8 @@ public class Game
    */
   public void setCell(int row, int col, int value)
   {
-	  grid[row][col] = value;
+	  storeCell(row, col, value);
+	  updateFeatures();
   }
   
   /**
@@ -195,6 +272,23 @@ public class Game
   public int[] copyRowOrColumn(int rowOrColumn, Direction dir)
   {
 	  int[] copyArr = new int[size];
+	  copyRowOrColumn(rowOrColumn, dir, copyArr);
+    return copyArr;
+  }
+  
+  /**
+   * Copy a row or column from the grid into the given one-dimensional array,
+   * in the same order as <code>copyRowOrColumn(int, Direction)</code>.
+   * The array must have length at least equal to the size of the grid.
+   * @param rowOrColumn
+   *   index of the row or column
+   * @param dir
+   *   direction from which to begin copying
+   * @param copyArr
+   *   array to receive the row or column
+   */
+  public void copyRowOrColumn(int rowOrColumn, Direction dir, int[] copyArr)
+  {
 	  int k = 0;
 	  if(dir == Direction.LEFT)
 	  {
@@ -228,8 +322,6 @@ public class Game
 			  k++;
 		  }
 	  }
-	
-    return copyArr;
   }
     
   /**
@@ -255,12 +347,32 @@ public class Game
    */
   public void updateRowOrColumn(int[] arr, int rowOrColumn, Direction dir)
   {
+	  writeRowOrColumn(arr, rowOrColumn, dir);
+	  updateFeatures();
+  }
+  
+  /**
+   * Copies the given array into a row or column as described for
+   * <code>updateRowOrColumn</code>, marking the changed cells but without
+   * updating the features.
+   * @param arr
+   *   the array from which to copy
+   * @param rowOrColumn
+   *   index of the row or column
+   * @param dir
+   *   direction from which to begin copying
+   * @return
+   *   true if any cell changed, false otherwise
+   */
+  private boolean writeRowOrColumn(int[] arr, int rowOrColumn, Direction dir)
+  {
+	  boolean changed = false;
 	  int k = 0;
 	  if(dir == Direction.LEFT)
 	  {
 		  for(int i = 0; i < grid.length; i += 1)
 		  {
-			  setCell(rowOrColumn,i,arr[k]);
+			  changed |= storeCell(rowOrColumn,i,arr[k]);
 			  k++;
 		  }
 	  }
@@ -268,7 +380,7 @@ public class Game
 	  {
 		  for(int i = grid.length - 1; i >= 0; i --)
 		  {
-			  setCell(rowOrColumn,i,arr[k]);
+			  changed |= storeCell(rowOrColumn,i,arr[k]);
 			  k++;
 		  }
 	  }
@@ -276,7 +388,7 @@ public class Game
 	  {
 		  for(int i = grid.length - 1; i >= 0 ; i--)
 		  {
-			 setCell(k,rowOrColumn,arr[i]);
+			 changed |= storeCell(k,rowOrColumn,arr[i]);
 			 k++;
 		  }
 	  }
@@ -284,11 +396,11 @@ public class Game
 	  {
 		  for(int i = 0; i < grid.length; i++)
 		  {
-			 setCell(k,rowOrColumn, arr[i]);
+			 changed |= storeCell(k,rowOrColumn, arr[i]);
 			 k++;
 		  }
 	  }
-
+	  return changed;
   }
 
   /**
@@ -315,6 +427,7 @@ public class Game
 	  ArrayList<Move> temp1 = new ArrayList<Move>();
 	  isUndo = true;
 	  int[] temp = new int[size];
+	  boolean moved = false;
 	  lastMove = dir;
 	  prevGrid = config.copyGrid(grid);
 	  
@@ -326,12 +439,13 @@ public class Game
 		  {
 			m1.setDirection(i, dir);
 		  }
-		  updateRowOrColumn(temp, i, dir);
+		  moved |= writeRowOrColumn(temp, i, dir);
 		  m.addAll(temp1);
 		  shiftGrid = true;
 	  }
+	  updateFeatures();
 	  
-	  if(Arrays.deepEquals(prevGrid, grid))
+	  if(!moved)
 	  {
 		 lastMove = null;
 		 shiftGrid = false;
@@ -340,6 +454,392 @@ public class Game
     return m;
   }
 
+  /**
+   * Plays a sequence of complete turns, each consisting of a shift in the
+   * given direction followed by a new tile, as if by calls to
+   * <code>shiftGrid()</code> and <code>newTile()</code>.  The random number
+   * generator is used exactly as those two methods would use it, so the 
+   * resulting game state is the same.  Unlike <code>shiftGrid()</code>, no
+   * Move or TilePosition objects are created for the individual turns.
+   * <p>
+   * The sequence stops at the first move that does not shift any cells
+   * (including a null direction), which is always the case once the game is
+   * over.  A turn left pending by an earlier <code>shiftGrid()</code> is
+   * discarded by the first applied turn, and afterwards <code>undo()</code>
+   * returns false as it would after <code>newTile()</code>.  The score is
+   * updated once, after the last applied turn.
+   * @param dirs
+   *   directions of the moves to play
+   * @param offset
+   *   index in <code>dirs</code> of the first move
+   * @param len
+   *   number of moves to play
+   * @return
+   *   summary of the turns that were applied
+   * @throws IndexOutOfBoundsException
+   *   if <code>offset</code> and <code>len</code> do not describe a range
+   *   within <code>dirs</code>
+   */
+  public MoveSummary applyMoves(Direction[] dirs, int offset, int len)
+  {
+	  Objects.checkFromIndexSize(offset, len, dirs.length);
+	  int turns = 0;
+	  while(turns < len)
+	  {
+		  Direction dir = dirs[offset + turns];
+		  if(dir == null || !shiftInPlace(dir))
+		  {
+			  break;
+		  }
+		  int num = config.generateRandomTileIndex(grid, rand, dir);
+		  if(dir == Direction.LEFT)
+		  {
+			  storeCell(num, size - 1, nextTileValue);
+		  }
+		  else if(dir == Direction.RIGHT)
+		  {
+			  storeCell(num, 0, nextTileValue);
+		  }
+		  else if(dir == Direction.UP)
+		  {
+			  storeCell(size - 1, num, nextTileValue);
+		  }
+		  else
+		  {
+			  storeCell(0, num, nextTileValue);
+		  }
+		  nextTileValue = config.generateRandomTileValue(rand);
+		  turns++;
+	  }
+	  // features of every line touched by any of the turns are updated once
+	  updateFeatures();
+	  
+	  if(turns > 0)
+	  {
+		  lastMove = dirs[offset + turns - 1];
+		  shiftGrid = true;
+		  isUndo = false;
+		  score = config.calculateTotalScore(grid);
+	  }
+	  return new MoveSummary(turns, score, maxTile, isGameOver());
+  }
+  
+  /**
+   * Shifts every row or column in the given direction without recording
+   * moves, saving the grid for <code>undo()</code> or updating the features.
+   * @param dir
+   *   direction in which to shift the grid
+   * @return
+   *   true if any cell was moved or merged, false otherwise
+   */
+  private boolean shiftInPlace(Direction dir)
+  {
+	  boolean moved = false;
+	  for(int i = 0; i < size; i++)
+	  {
+		  copyRowOrColumn(i, dir, lineBuffer);
+		  if(config.shiftArrayInPlace(lineBuffer))
+		  {
+			  writeRowOrColumn(lineBuffer, i, dir);
+			  moved = true;
+		  }
+	  }
+	  return moved;
+  }
+  
+  /**
+   * Determines whether a shift in the given direction would move at least
+   * one cell, that is, whether <code>shiftGrid()</code> would return a 
+   * non-null list.  The grid is not modified.
+   * @param dir
+   *   direction to test
+   * @return
+   *   true if the direction is a legal move, false otherwise
+   */
+  public boolean isLegalMove(Direction dir)
+  {
+	  if(dir == null)
+	  {
+		  return false;
+	  }
+	  return movableLines[dir.ordinal()] > 0;
+  }
+  
+  /**
+   * Returns the legal moves as a bit mask, in which bit 
+   * <code>dir.ordinal()</code> is set if <code>isLegalMove(dir)</code> 
+   * is true.
+   * @return
+   *   mask of the legal moves
+   */
+  public int getLegalMoveMask()
+  {
+	  int mask = 0;
+	  for(int i = 0; i < movableLines.length; i++)
+	  {
+		  if(movableLines[i] > 0)
+		  {
+			  mask |= 1 << i;
+		  }
+	  }
+	  return mask;
+  }
+  
+  /**
+   * Determines whether the game is over, that is, whether no direction
+   * would move any cell.
+   * @return
+   *   true if there is no legal move, false otherwise
+   */
+  public boolean isGameOver()
+  {
+	  return getLegalMoveMask() == 0;
+  }
+  
+  /**
+   * Returns the largest tile value currently in the grid.
+   * @return
+   *   largest value in the grid
+   */
+  public int getMaxTile()
+  {
+	  return maxTile;
+  }
+  
+  /**
+   * Returns the number of empty cells in the grid.
+   * @return
+   *   number of cells containing zero
+   */
+  public int getEmptyCount()
+  {
+	  return emptyCount;
+  }
+  
+  /**
+   * Returns the number of pairs of horizontally or vertically adjacent
+   * cells whose values can be merged according to 
+   * <code>GameUtil.mergeValues</code>.
+   * @return
+   *   number of mergeable pairs
+   */
+  public int getMergeablePairCount()
+  {
+	  return mergeablePairs;
+  }
+  
+  /**
+   * Sets the value of a cell and marks its row and column as changed if
+   * the value differs, without updating the features.
+   * @param row
+   *   given row
+   * @param col
+   *   given column
+   * @param value
+   *   value to be set
+   * @return
+   *   true if the value of the cell changed, false otherwise
+   */
+  private boolean storeCell(int row, int col, int value)
+  {
+	  if(grid[row][col] == value)
+	  {
+		  return false;
+	  }
+	  grid[row][col] = value;
+	  rowDirty[row] = true;
+	  colDirty[col] = true;
+	  dirty = true;
+	  return true;
+  }
+  
+  /**
+   * Marks every row and column as changed, for when the whole grid may
+   * have been replaced.
+   */
+  private void markAllDirty()
+  {
+	  for(int i = 0; i < size; i++)
+	  {
+		  rowDirty[i] = true;
+		  colDirty[i] = true;
+	  }
+	  dirty = true;
+  }
+  
+  /**
+   * Recomputes the features of the rows and columns marked as changed
+   * and updates the totals for the grid.
+   */
+  private void updateFeatures()
+  {
+	  if(!dirty)
+	  {
+		  return;
+	  }
+	  boolean rowsChanged = false;
+	  for(int i = 0; i < size; i++)
+	  {
+		  if(rowDirty[i])
+		  {
+			  updateRowFeatures(i);
+			  rowDirty[i] = false;
+			  rowsChanged = true;
+		  }
+		  if(colDirty[i])
+		  {
+			  updateColumnFeatures(i);
+			  colDirty[i] = false;
+		  }
+	  }
+	  if(rowsChanged)
+	  {
+		  maxTile = 0;
+		  for(int i = 0; i < size; i++)
+		  {
+			  maxTile = Math.max(maxTile, rowMax[i]);
+		  }
+	  }
+	  dirty = false;
+  }
+  
+  /**
+   * Recomputes the empty cells, largest tile, mergeable pairs and legal
+   * horizontal moves of one row, replacing its previous contribution to
+   * the totals.
+   * @param row
+   *   index of the row
+   */
+  private void updateRowFeatures(int row)
+  {
+	  int empty = 0;
+	  int max = 0;
+	  int pairs = 0;
+	  for(int col = 0; col < size; col++)
+	  {
+		  int value = grid[row][col];
+		  if(value == 0)
+		  {
+			  empty += 1;
+		  }
+		  max = Math.max(max, value);
+		  if(col + 1 < size && config.mergeValues(value, grid[row][col + 1]) != 0)
+		  {
+			  pairs += 1;
+		  }
+	  }
+	  int moves = 0;
+	  if(lineMoves(row, true, false))
+	  {
+		  moves |= 1 << Direction.LEFT.ordinal();
+	  }
+	  if(lineMoves(row, true, true))
+	  {
+		  moves |= 1 << Direction.RIGHT.ordinal();
+	  }
+	  
+	  emptyCount += empty - rowEmpty[row];
+	  mergeablePairs += pairs - rowPairs[row];
+	  updateMovableLines(rowMoves[row], moves);
+	  rowEmpty[row] = empty;
+	  rowMax[row] = max;
+	  rowPairs[row] = pairs;
+	  rowMoves[row] = moves;
+  }
+  
+  /**
+   * Recomputes the mergeable pairs and legal vertical moves of one column,
+   * replacing its previous contribution to the totals.
+   * @param col
+   *   index of the column
+   */
+  private void updateColumnFeatures(int col)
+  {
+	  int pairs = 0;
+	  for(int row = 0; row + 1 < size; row++)
+	  {
+		  if(config.mergeValues(grid[row][col], grid[row + 1][col]) != 0)
+		  {
+			  pairs += 1;
+		  }
+	  }
+	  int moves = 0;
+	  if(lineMoves(col, false, false))
+	  {
+		  moves |= 1 << Direction.UP.ordinal();
+	  }
+	  if(lineMoves(col, false, true))
+	  {
+		  moves |= 1 << Direction.DOWN.ordinal();
+	  }
+	  
+	  mergeablePairs += pairs - colPairs[col];
+	  updateMovableLines(colMoves[col], moves);
+	  colPairs[col] = pairs;
+	  colMoves[col] = moves;
+  }
+  
+  /**
+   * Determines whether shifting a row or column toward its first cell
+   * (LEFT or UP), or toward its last cell when <code>reverse</code> is true
+   * (RIGHT or DOWN), would move any cell.  Following the rules of
+   * <code>GameUtil.shiftArrayInPlace</code>, this is the case when a cell
+   * before the first empty one can merge with its neighbor in the
+   * direction of the shift, or when a tile lies beyond an empty cell.
+   * The line is read in place rather than copied.
+   * @param rowOrColumn
+   *   index of the row or column
+   * @param isRow
+   *   true for a row, false for a column
+   * @param reverse
+   *   true to shift toward the last cell, false toward the first
+   * @return
+   *   true if the line would move, false otherwise
+   */
+  private boolean lineMoves(int rowOrColumn, boolean isRow, boolean reverse)
+  {
+	  int step = reverse ? -1 : 1;
+	  int i = reverse ? size - 1 : 0;
+	  boolean seenEmpty = false;
+	  for(int k = 0; k < size; k++, i += step)
+	  {
+		  int value = isRow ? grid[rowOrColumn][i] : grid[i][rowOrColumn];
+		  if(value == 0)
+		  {
+			  seenEmpty = true;
+		  }
+		  else if(seenEmpty)
+		  {
+			  return true;
+		  }
+		  else if(k + 1 < size)
+		  {
+			  int next = isRow ? grid[rowOrColumn][i + step] : grid[i + step][rowOrColumn];
+			  if(config.mergeValues(value, next) != 0)
+			  {
+				  return true;
+			  }
+		  }
+	  }
+	  return false;
+  }
+  
+  /**
+   * Updates the count of movable lines for each direction when a line's
+   * bits of legal moves change.
+   * @param oldMoves
+   *   previous bits of the line
+   * @param newMoves
+   *   new bits of the line
+   */
+  private void updateMovableLines(int oldMoves, int newMoves)
+  {
+	  for(int i = 0; i < movableLines.length; i++)
+	  {
+		  movableLines[i] += ((newMoves >> i) & 1) - ((oldMoves >> i) & 1);
+	  }
+  }
+
   /**
    * Reverts the shift performed in a previous call to <code>shiftGrid()</code>, 
    * provided that neither <code>newTile()</code> nor <code>undo()</code>
@@ -357,7 +857,14 @@ public class Game
 	  }
 	  if(isUndo)
 	  {
-		  grid = config.copyGrid(prevGrid);
+		  for(int row = 0; row < size; row++)
+		  {
+			  for(int col = 0; col < size; col++)
+			  {
+				  storeCell(row, col, prevGrid[row][col]);
+			  }
+		  }
+		  updateFeatures();
 		  isUndo = false;
 		  return true;
 	  }
@@ -405,6 +912,95 @@ public class Game
 	  return null;
   }
   
+  /**
+   * Returns the value in the cell at the given row and column of the grid
+   * saved by the last call to <code>shiftGrid()</code>.
+   * @param row
+   *   given row
+   * @param col
+   *   given column
+   * @return
+   *   value in the saved cell
+   */
+  int getPrevCell(int row, int col)
+  {
+	  return prevGrid[row][col];
+  }
+  
+  /**
+   * Sets the value of a cell in the grid saved for <code>undo()</code>.
+   * @param row
+   *   given row
+   * @param col
+   *   given column
+   * @param value
+   *   value to be set
+   */
+  void setPrevCell(int row, int col, int value)
+  {
+	  prevGrid[row][col] = value;
+  }
+  
+  /**
+   * Sets the value of a cell while the game's state is being restored.
+   * The state is not consistent again until <code>restoreState</code>
+   * has been called.
+   * @param row
+   *   given row
+   * @param col
+   *   given column
+   * @param value
+   *   value to be set
+   */
+  void loadCell(int row, int col, int value)
+  {
+	  storeCell(row, col, value);
+  }
+  
+  /**
+   * Returns the direction of a shift that can still be completed by
+   * <code>newTile()</code> or reverted by <code>undo()</code>.
+   * @return
+   *   direction of the pending shift, or null if there is none
+   */
+  Direction getPendingMove()
+  {
+	  if(isUndo && shiftGrid)
+	  {
+		  return lastMove;
+	  }
+	  return null;
+  }
+  
+  /**
+   * Returns this game's random number generator.
+   * @return
+   *   random number generator
+   */
+  Random getRandom()
+  {
+	  return rand;
+  }
+  
+  /**
+   * Completes restoring a saved state after its cells have been loaded.
+   * @param givenScore
+   *   saved score
+   * @param givenNextTileValue
+   *   saved value of the next tile
+   * @param pendingMove
+   *   direction of the pending shift, or null if there is none
+   */
+  void restoreState(int givenScore, int givenNextTileValue, Direction pendingMove)
+  {
+	  score = givenScore;
+	  nextTileValue = givenNextTileValue;
+	  lastMove = pendingMove;
+	  isUndo = pendingMove != null;
+	  shiftGrid = pendingMove != null;
+	  updateFeatures();
+  }
+  
   /**
    * Returns the value that will appear on the next tile generated in a call to 
    * <code>newTile</code>.  This is an accessor method that does not modify
@@ -208,71 +208,81 @@ public class GameUtil
    */
   public TilePosition generateRandomTilePosition(int[][] grid, Random rand, Direction lastMove)
   {
-	  
-	int num = 0;
-	int c = 0;
-	int r = 0;
+	int num = generateRandomTileIndex(grid, rand, lastMove);
+	if(num < 0)
+	{
+		return null;
+	}
 	if(lastMove == Direction.LEFT)
 	{
-		c = grid.length - 1;
-		for(int i = 0; i < grid.length; i++)
-		{	
-			while(grid[i][c] == 0)
-			{
-				num = rand.nextInt(grid.length);
-				if(grid[num][grid.length - 1] == 0)
-				{
-					return new TilePosition(num, grid.length - 1, 0);
-				}
-			}
-		}
+		return new TilePosition(num, grid.length - 1, 0);
 	}
 	else if(lastMove == Direction.RIGHT)
 	{
-		c = 0;
-		for(int i = 0; i < grid.length; i++)
-		{
-			while(grid[i][c] == 0)
-			{
-				num = rand.nextInt(grid.length);
-				if(grid[num][0] == 0)
-				{
-					return new TilePosition(num, 0 , 0);
-				} 
-			}
-		}
+		return new TilePosition(num, 0, 0);
 	}
 	else if(lastMove == Direction.UP)
 	{
-		r = grid.length - 1;
-		for(int i = 0; i < grid.length; i++)
-		{
-			while(grid[r][i] == 0)
-			{
-				num = rand.nextInt(grid.length);
-				if(grid[grid.length - 1][num] == 0)
-				{
-					return new TilePosition(grid.length - 1, num, 0);
-				}
-			}
-		}
+		return new TilePosition(grid.length - 1, num, 0);
 	}
-	else if(lastMove == Direction.DOWN)
+	else
+	{
+		return new TilePosition(0, num, 0);
+	}
+  }
+  
+  /**
+   * Selects the position for a new tile without allocating a 
+   * <code>TilePosition</code>.  The new tile goes on the side of the grid 
+   * opposite that of the previous move, so the returned value is the row 
+   * index (for LEFT and RIGHT) or column index (for UP and DOWN) along that
+   * side.  The random number generator is used exactly as in
+   * <code>generateRandomTilePosition</code>, so both methods produce the 
+   * same sequence of positions.  The given grid is not modified.
+   * @param grid
+   *   given square array
+   * @param rand
+   *   random number generator to use
+   * @param lastMove
+   *   given direction
+   * @return
+   *   index along the side opposite <code>lastMove</code>, or -1 if 
+   *   <code>lastMove</code> is null or that side has no empty cell
+   */
+  public int generateRandomTileIndex(int[][] grid, Random rand, Direction lastMove)
+  {
+	int edge = grid.length - 1;
+	boolean vertical = false;
+	if(lastMove == Direction.RIGHT || lastMove == Direction.DOWN)
+	{
+		edge = 0;
+	}
+	if(lastMove == Direction.UP || lastMove == Direction.DOWN)
 	{
-		r = 0;
-		for(int i = 0; i < grid.length; i++)
+		vertical = true;
+	}
+	else if(lastMove != Direction.LEFT && lastMove != Direction.RIGHT)
+	{
+		return -1;
+	}
+	
+	boolean hasEmpty = false;
+	for(int i = 0; i < grid.length && !hasEmpty; i++)
+	{
+		hasEmpty = (vertical ? grid[edge][i] : grid[i][edge]) == 0;
+	}
+	if(!hasEmpty)
+	{
+		return -1;
+	}
+	while(true)
+	{
+		int num = rand.nextInt(grid.length);
+		if((vertical ? grid[edge][num] : grid[num][edge]) == 0)
 		{
-			while(grid[r][i] == 0)
-			{
-				num = rand.nextInt(grid.length);
-				if(grid[0][num] == 0)
-				{
-					return new TilePosition(0, num, 0);
-				}
-			}
+			return num;
 		}
 	}
-	return null;
   }
   
   /**
@@ -345,4 +355,43 @@ public class GameUtil
     return list;
   }
   
+  /**
+   * Shifts the array elements to the left exactly as 
+   * <code>shiftArray</code> does, but without building the list of 
+   * Move objects.  This is intended for callers that only need the
+   * resulting tile values, such as bulk replay of a move sequence.
+   * 
+   * @param arr
+   *   array to be shifted
+   * @return
+   *   true if any element of the array was moved or merged, false otherwise
+   */
+  public boolean shiftArrayInPlace(int[] arr)
+  {
+	boolean moved = false;
+	for(int i = 0; i < arr.length - 1; i++)
+	{
+		if(arr[i] == 0)
+		{
+			arr[i] = arr[i + 1];
+			arr[i + 1] = 0;
+			if(arr[i] != 0)
+			{
+				moved = true;
+			}
+		}
+		else
+		{
+			int num = mergeValues(arr[i], arr[i + 1]);
+			if(num != 0)
+			{
+				arr[i + 1] = 0;
+				arr[i] = num;
+				moved = true;
+			}
+		}
+	}
+	return moved;
+  }
+  
 }
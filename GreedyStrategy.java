@@ -0,0 +1,64 @@
+package hw3;
+
+import java.util.Random;
+import api.Direction;
+
+/**
+ * Strategy that chooses the legal move whose shifted grid has the highest
+ * total score, as computed by <code>GameUtil.calculateTotalScore</code>.
+ * Ties are broken in the order of <code>Direction.values()</code>.
+ * 
+ * @author BennyOoi
+ */
+public class GreedyStrategy implements MoveStrategy
+{
+	/**
+	 * Rules used to score the shifted grids
+	 * */
+	private final GameUtil config;
+
+  /**
+   * Constructs a greedy strategy scoring grids with the given rules.
+   * @param givenConfig
+   *   given instance of GameUtil
+   */
+  public GreedyStrategy(GameUtil givenConfig)
+  {
+	  config = givenConfig;
+  }
+  
+  @Override
+  public String getName()
+  {
+	  return "greedy";
+  }
+  
+  @Override
+  public Direction chooseMove(Game game, Random rand)
+  {
+	  int size = game.getSize();
+	  // each row of the array holds one shifted row or column; the total
+	  // score does not depend on how the cells are arranged
+	  int[][] shifted = new int[size][size];
+	  Direction best = null;
+	  int bestScore = -1;
+	  for(Direction dir : Direction.values())
+	  {
+		  if(game.isLegalMove(dir))
+		  {
+			  for(int i = 0; i < size; i++)
+			  {
+				  game.copyRowOrColumn(i, dir, shifted[i]);
+				  config.shiftArrayInPlace(shifted[i]);
+			  }
+			  int score = config.calculateTotalScore(shifted);
+			  if(score > bestScore)
+			  {
+				  bestScore = score;
+				  best = dir;
+			  }
+		  }
+	  }
+	  return best;
+  }
+}
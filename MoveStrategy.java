@@ -0,0 +1,35 @@
+package hw3;
+
+import java.util.Random;
+import api.Direction;
+
+/**
+ * A policy for choosing the next move in a <code>Game</code>, such as
+ * the ones compared by <code>Tournament</code>.  A single instance may be
+ * used by several threads at once, each with its own game, so 
+ * implementations must not keep per-game state in fields.
+ * 
+ * @author BennyOoi
+ */
+public interface MoveStrategy
+{
+  /**
+   * Returns a short name identifying this strategy in reports.
+   * @return
+   *   name of the strategy
+   */
+  String getName();
+  
+  /**
+   * Chooses the direction of the next shift.  The strategy may explore
+   * moves with <code>shiftGrid()</code> and <code>undo()</code>, but must
+   * leave the game with no pending shift.
+   * @param game
+   *   game in which to move
+   * @param rand
+   *   random number generator reserved for this strategy and game
+   * @return
+   *   direction of the next shift, or null to end the game
+   */
+  Direction chooseMove(Game game, Random rand);
+}
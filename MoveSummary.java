@@ -0,0 +1,89 @@
+package hw3;
+
+/**
+ * Summary of a sequence of turns played by <code>Game.applyMoves()</code>.
+ * Only the outcome of the whole sequence is recorded, not the individual
+ * moves, so a single instance is created per call.
+ * 
+ * @author BennyOoi
+ */
+public class MoveSummary
+{
+	/**
+	 * Number of turns that were applied
+	 * */
+	private final int turnsApplied;
+	/**
+	 * Score of the game after the last applied turn
+	 * */
+	private final int score;
+	/**
+	 * Largest tile value in the grid after the last applied turn
+	 * */
+	private final int maxTile;
+	/**
+	 * true if no direction is a legal move after the last applied turn
+	 * */
+	private final boolean gameOver;
+
+  /**
+   * Constructs a summary with the given values.
+   * @param givenTurnsApplied
+   *   number of turns that were applied
+   * @param givenScore
+   *   score after the last applied turn
+   * @param givenMaxTile
+   *   largest tile value after the last applied turn
+   * @param givenGameOver
+   *   true if no further move is possible
+   */
+  public MoveSummary(int givenTurnsApplied, int givenScore, int givenMaxTile, boolean givenGameOver)
+  {
+	  turnsApplied = givenTurnsApplied;
+	  score = givenScore;
+	  maxTile = givenMaxTile;
+	  gameOver = givenGameOver;
+  }
+  
+  /**
+   * Returns the number of turns that were applied.  This is less than the 
+   * number of requested moves if the sequence stopped at an illegal move.
+   * @return
+   *   number of applied turns
+   */
+  public int getTurnsApplied()
+  {
+	  return turnsApplied;
+  }
+  
+  /**
+   * Returns the score of the game after the last applied turn.
+   * @return
+   *   final score
+   */
+  public int getScore()
+  {
+	  return score;
+  }
+  
+  /**
+   * Returns the largest tile value in the grid after the last applied turn.
+   * @return
+   *   largest tile value
+   */
+  public int getMaxTile()
+  {
+	  return maxTile;
+  }
+  
+  /**
+   * Returns whether the game is over, that is, whether no direction
+   * would shift any cell.
+   * @return
+   *   true if the game is over, false otherwise
+   */
+  public boolean isGameOver()
+  {
+	  return gameOver;
+  }
+}
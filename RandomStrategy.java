@@ -0,0 +1,43 @@
+package hw3;
+
+import java.util.Random;
+import api.Direction;
+
+/**
+ * Strategy that chooses uniformly at random among the legal moves.
+ * 
+ * @author BennyOoi
+ */
+public class RandomStrategy implements MoveStrategy
+{
+	/**
+	 * All directions, in the order of <code>Direction.values()</code>
+	 * */
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+  @Override
+  public String getName()
+  {
+	  return "random";
+  }
+  
+  @Override
+  public Direction chooseMove(Game game, Random rand)
+  {
+	  Direction choice = null;
+	  int legal = 0;
+	  for(Direction dir : DIRECTIONS)
+	  {
+		  // reservoir sampling keeps each legal move with equal probability
+		  if(game.isLegalMove(dir))
+		  {
+			  legal += 1;
+			  if(rand.nextInt(legal) == 0)
+			  {
+				  choice = dir;
+			  }
+		  }
+	  }
+	  return choice;
+  }
+}
@@ -0,0 +1,476 @@
+package hw3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed results of shifting every possible row, for search agents
+ * and evaluators that look at many boards.  A row of tile values is packed
+ * into an int using the 4-bit codes of <code>BoardCodec</code>, the first
+ * (leftmost) tile in the lowest four bits.  For each packed row the tables
+ * hold the row after <code>GameUtil.shiftArrayInPlace</code>, the number
+ * of merges, the change in score and a heuristic value.  Since a
+ * <code>Game</code> shifts every row or column by copying it in the
+ * direction of the shift, the same tables serve all four directions.
+ * <p>
+ * The tables are kept in a file and memory-mapped read-only, so they are
+ * built only once and every JVM on the host shares the same pages.  The
+ * file starts with a header recording the format version, the row length
+ * and a fingerprint of the rules (<code>fingerprint</code>); if any of them
+ * does not match, the file is rebuilt in parallel and atomically replaced.
+ * The header is followed by four arrays indexed by packed row: shifted rows
+ * (int), score deltas (int), heuristic values (float) and merge counts
+ * (byte), all big-endian.
+ *
+ * @author BennyOoi
+ */
+public class RowTables
+{
+	/**
+	 * Version of the file layout and of the heuristic; change it whenever
+	 * either changes, or when the shifting rules change
+	 * */
+	public static final int FORMAT_VERSION = 1;
+	/**
+	 * Number of tiles in a row of a standard 4 by 4 game
+	 * */
+	public static final int DEFAULT_ROW_LENGTH = 4;
+	/**
+	 * Largest supported row length
+	 * */
+	public static final int MAX_ROW_LENGTH = 5;
+	/**
+	 * First four bytes of every table file, "THR3"
+	 * */
+	private static final int MAGIC = 0x54485233;
+	/**
+	 * Number of bytes before the first array
+	 * */
+	private static final int HEADER_SIZE = 32;
+	/**
+	 * Number of rows computed together by one parallel task
+	 * */
+	private static final int CHUNK = 4096;
+	/**
+	 * Weight of each empty cell in the heuristic
+	 * */
+	private static final float EMPTY_WEIGHT = 1.0f;
+	/**
+	 * Weight of each adjacent mergeable pair in the heuristic
+	 * */
+	private static final float MERGE_WEIGHT = 1.0f;
+	/**
+	 * Weight of the non-monotonicity penalty in the heuristic
+	 * */
+	private static final float MONOTONICITY_WEIGHT = 0.5f;
+	/**
+	 * Mapped contents of the table file
+	 * */
+	private final ByteBuffer buffer;
+	/**
+	 * Number of tiles in each row
+	 * */
+	private final int rowLength;
+	/**
+	 * Number of packed rows, 16 to the power rowLength
+	 * */
+	private final int rows;
+
+  /**
+   * Constructs tables backed by the given validated file contents.
+   * @param givenBuffer
+   *   mapped contents of the table file
+   * @param givenRowLength
+   *   number of tiles in each row
+   */
+  private RowTables(ByteBuffer givenBuffer, int givenRowLength)
+  {
+	  buffer = givenBuffer;
+	  rowLength = givenRowLength;
+	  rows = 1 << (4 * rowLength);
+  }
+
+  /**
+   * Opens the tables for rows of the default length, building the file
+   * first if it is missing or was built for different rules.
+   * @param file
+   *   path of the table file
+   * @param config
+   *   rules the tables must reflect
+   * @return
+   *   tables mapped from the file
+   * @throws IOException
+   *   if the file cannot be read, written or mapped
+   */
+  public static RowTables open(Path file, GameUtil config) throws IOException
+  {
+	  return open(file, config, DEFAULT_ROW_LENGTH);
+  }
+
+  /**
+   * Opens the tables for rows of the given length, building the file first
+   * if it is missing or was built for different rules.  Several JVMs may
+   * call this method at once; each may build its own copy, but the file
+   * is only ever replaced by a complete one.
+   * @param file
+   *   path of the table file
+   * @param config
+   *   rules the tables must reflect
+   * @param rowLength
+   *   number of tiles in each row, between 1 and MAX_ROW_LENGTH
+   * @return
+   *   tables mapped from the file
+   * @throws IOException
+   *   if the file cannot be read, written or mapped
+   */
+  public static RowTables open(Path file, GameUtil config, int rowLength) throws IOException
+  {
+	  if(rowLength < 1 || rowLength > MAX_ROW_LENGTH)
+	  {
+		  throw new IllegalArgumentException("Unsupported row length: " + rowLength);
+	  }
+	  long fingerprint = fingerprint(config);
+	  ByteBuffer mapped = map(file, rowLength, fingerprint);
+	  if(mapped == null)
+	  {
+		  build(file, config, rowLength, fingerprint);
+		  mapped = map(file, rowLength, fingerprint);
+		  if(mapped == null)
+		  {
+			  throw new IOException("Table file was not valid after rebuilding: " + file);
+		  }
+	  }
+	  return new RowTables(mapped, rowLength);
+  }
+
+  /**
+   * Returns a fingerprint of the merging and scoring rules of the given
+   * <code>GameUtil</code>, computed from the results of
+   * <code>mergeValues</code> and <code>getScoreForValue</code> for every
+   * tile value that has a 4-bit code.  Two instances with the same rules
+   * have the same fingerprint.
+   * @param config
+   *   rules to fingerprint
+   * @return
+   *   64-bit fingerprint
+   */
+  public static long fingerprint(GameUtil config)
+  {
+	  // FNV-1a over the rule outputs
+	  long hash = 0xcbf29ce484222325L;
+	  for(int a = 0; a < 16; a++)
+	  {
+		  hash = (hash ^ config.getScoreForValue(BoardCodec.decodeValue(a))) * 0x100000001b3L;
+		  for(int b = 0; b < 16; b++)
+		  {
+			  int merged = config.mergeValues(BoardCodec.decodeValue(a), BoardCodec.decodeValue(b));
+			  hash = (hash ^ merged) * 0x100000001b3L;
+		  }
+	  }
+	  return hash;
+  }
+
+  /**
+   * Packs the first <code>rowLength</code> tile values of the given array.
+   * @param arr
+   *   tile values, leftmost first
+   * @return
+   *   packed row
+   * @throws IllegalArgumentException
+   *   if a value has no 4-bit code
+   */
+  public int packRow(int[] arr)
+  {
+	  int packed = 0;
+	  for(int i = 0; i < rowLength; i++)
+	  {
+		  packed |= BoardCodec.encodeValue(arr[i]) << (4 * i);
+	  }
+	  return packed;
+  }
+
+  /**
+   * Unpacks a row into the first <code>rowLength</code> elements of the
+   * given array.
+   * @param packed
+   *   packed row
+   * @param arr
+   *   array to receive the tile values, leftmost first
+   */
+  public void unpackRow(int packed, int[] arr)
+  {
+	  for(int i = 0; i < rowLength; i++)
+	  {
+		  arr[i] = BoardCodec.decodeValue((packed >> (4 * i)) & 15);
+	  }
+  }
+
+  /**
+   * Returns the number of tiles in each row.
+   * @return
+   *   row length
+   */
+  public int getRowLength()
+  {
+	  return rowLength;
+  }
+
+  /**
+   * Returns the given row after shifting it to the left.  The result
+   * equals the row itself if the shift moves nothing.
+   * @param row
+   *   packed row
+   * @return
+   *   packed shifted row, or -1 if a merge would produce a tile too large
+   *   for a 4-bit code
+   */
+  public int getShiftedRow(int row)
+  {
+	  return buffer.getInt(HEADER_SIZE + 4 * row);
+  }
+
+  /**
+   * Returns the change in total score caused by shifting the given row.
+   * @param row
+   *   packed row
+   * @return
+   *   score after the shift minus score before, or 0 if
+   *   <code>getShiftedRow</code> returns -1
+   */
+  public int getScoreDelta(int row)
+  {
+	  return buffer.getInt(HEADER_SIZE + 4 * rows + 4 * row);
+  }
+
+  /**
+   * Returns the heuristic value of the given row (not of its shifted
+   * form).  Higher is better: each empty cell and each adjacent mergeable
+   * pair adds to the value, and a row that is not monotonic loses value in
+   * proportion to the size of its smaller direction of change.
+   * @param row
+   *   packed row
+   * @return
+   *   heuristic value
+   */
+  public float getHeuristic(int row)
+  {
+	  return buffer.getFloat(HEADER_SIZE + 8 * rows + 4 * row);
+  }
+
+  /**
+   * Returns the number of merges performed by shifting the given row.
+   * @param row
+   *   packed row
+   * @return
+   *   number of merges, or 0 if <code>getShiftedRow</code> returns -1
+   */
+  public int getMergeCount(int row)
+  {
+	  return buffer.get(HEADER_SIZE + 12 * rows + row);
+  }
+
+  /**
+   * Returns the length in bytes of a table file for the given row length.
+   * @param rowLength
+   *   number of tiles in each row
+   * @return
+   *   file length
+   */
+  private static long fileLength(int rowLength)
+  {
+	  return HEADER_SIZE + 13L * (1 << (4 * rowLength));
+  }
+
+  /**
+   * Maps the given file read-only if it exists and its header matches.
+   * @param file
+   *   path of the table file
+   * @param rowLength
+   *   expected row length
+   * @param fingerprint
+   *   expected fingerprint of the rules
+   * @return
+   *   mapped contents, or null if the file is missing or does not match
+   * @throws IOException
+   *   if the file exists but cannot be read or mapped
+   */
+  private static ByteBuffer map(Path file, int rowLength, long fingerprint) throws IOException
+  {
+	  if(!Files.exists(file))
+	  {
+		  return null;
+	  }
+	  try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+	  {
+		  if(channel.size() != fileLength(rowLength))
+		  {
+			  return null;
+		  }
+		  // the mapping stays valid after the channel is closed
+		  MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		  if(mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION
+				  || mapped.getInt(8) != rowLength || mapped.getLong(16) != fingerprint)
+		  {
+			  return null;
+		  }
+		  return mapped;
+	  }
+  }
+
+  /**
+   * Computes the tables in parallel into a temporary file next to the
+   * given one, then moves it into place.  The header is written last, so
+   * a partly written file is never mistaken for a valid one.
+   * @param file
+   *   path of the table file
+   * @param config
+   *   rules the tables must reflect
+   * @param rowLength
+   *   number of tiles in each row
+   * @param fingerprint
+   *   fingerprint of the rules
+   * @throws IOException
+   *   if the file cannot be written
+   */
+  private static void build(Path file, GameUtil config, int rowLength, long fingerprint) throws IOException
+  {
+	  Path dir = file.toAbsolutePath().getParent();
+	  Files.createDirectories(dir);
+	  Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+	  try
+	  {
+		  try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE))
+		  {
+			  MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileLength(rowLength));
+			  int rows = 1 << (4 * rowLength);
+			  // tasks write disjoint ranges with absolute puts only
+			  IntStream.range(0, (rows + CHUNK - 1) / CHUNK).parallel().forEach(
+					  chunk -> fillChunk(out, config, rowLength, chunk * CHUNK, Math.min(rows, (chunk + 1) * CHUNK)));
+			  out.force();
+			  out.putInt(0, MAGIC);
+			  out.putInt(4, FORMAT_VERSION);
+			  out.putInt(8, rowLength);
+			  out.putLong(16, fingerprint);
+			  out.force();
+		  }
+		  try
+		  {
+			  Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		  }
+		  catch(AtomicMoveNotSupportedException e)
+		  {
+			  Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		  }
+	  }
+	  finally
+	  {
+		  Files.deleteIfExists(temp);
+	  }
+  }
+
+  /**
+   * Computes the table entries for a range of packed rows.
+   * @param out
+   *   buffer holding the whole table file
+   * @param config
+   *   rules to apply
+   * @param rowLength
+   *   number of tiles in each row
+   * @param from
+   *   first packed row, inclusive
+   * @param to
+   *   last packed row, exclusive
+   */
+  private static void fillChunk(ByteBuffer out, GameUtil config, int rowLength, int from, int to)
+  {
+	  int rows = 1 << (4 * rowLength);
+	  int[] line = new int[rowLength];
+	  for(int row = from; row < to; row++)
+	  {
+		  int before = 0;
+		  int tilesBefore = 0;
+		  for(int i = 0; i < rowLength; i++)
+		  {
+			  line[i] = BoardCodec.decodeValue((row >> (4 * i)) & 15);
+			  before += config.getScoreForValue(line[i]);
+			  tilesBefore += line[i] == 0 ? 0 : 1;
+		  }
+		  float heuristic = heuristic(config, line);
+
+		  config.shiftArrayInPlace(line);
+		  int shifted = 0;
+		  int after = 0;
+		  int tilesAfter = 0;
+		  for(int i = 0; i < rowLength && shifted >= 0; i++)
+		  {
+			  if(line[i] > BoardCodec.decodeValue(15))
+			  {
+				  shifted = -1;
+			  }
+			  else
+			  {
+				  shifted |= BoardCodec.encodeValue(line[i]) << (4 * i);
+				  after += config.getScoreForValue(line[i]);
+				  tilesAfter += line[i] == 0 ? 0 : 1;
+			  }
+		  }
+
+		  out.putInt(HEADER_SIZE + 4 * row, shifted);
+		  out.putInt(HEADER_SIZE + 4 * rows + 4 * row, shifted < 0 ? 0 : after - before);
+		  out.putFloat(HEADER_SIZE + 8 * rows + 4 * row, heuristic);
+		  out.put(HEADER_SIZE + 12 * rows + row, (byte) (shifted < 0 ? 0 : tilesBefore - tilesAfter));
+	  }
+  }
+
+  /**
+   * Computes the heuristic value of a row of tile values, as described
+   * for <code>getHeuristic</code>.  Monotonicity is measured on the 4-bit
+   * codes, so it grows with the number of doublings between tiles.
+   * @param config
+   *   rules deciding which pairs can merge
+   * @param line
+   *   tile values, leftmost first
+   * @return
+   *   heuristic value
+   */
+  private static float heuristic(GameUtil config, int[] line)
+  {
+	  int empty = 0;
+	  int mergeable = 0;
+	  int increase = 0;
+	  int decrease = 0;
+	  for(int i = 0; i < line.length; i++)
+	  {
+		  if(line[i] == 0)
+		  {
+			  empty += 1;
+		  }
+		  if(i + 1 < line.length)
+		  {
+			  if(line[i] != 0 && line[i + 1] != 0 && config.mergeValues(line[i], line[i + 1]) != 0)
+			  {
+				  mergeable += 1;
+			  }
+			  int diff = BoardCodec.encodeValue(line[i + 1]) - BoardCodec.encodeValue(line[i]);
+			  if(diff > 0)
+			  {
+				  increase += diff;
+			  }
+			  else
+			  {
+				  decrease -= diff;
+			  }
+		  }
+	  }
+	  return EMPTY_WEIGHT * empty + MERGE_WEIGHT * mergeable
+			  - MONOTONICITY_WEIGHT * Math.min(increase, decrease);
+  }
+}
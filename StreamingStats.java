@@ -0,0 +1,258 @@
+package hw3;
+
+/**
+ * Fixed-memory summary of a stream of non-negative values, such as the
+ * scores of many games.  The count, mean, variance, minimum and maximum are
+ * exact; quantiles come from a log-linear histogram whose buckets are at
+ * most 1/16 of their lower bound wide, so an estimated quantile is within
+ * about 3% of a value that was actually added.  Summaries built separately,
+ * for example on different threads, can be combined with
+ * <code>merge</code>.
+ *
+ * @author BennyOoi
+ */
+public class StreamingStats
+{
+	/**
+	 * Number of bits of each value kept below its leading bit
+	 * */
+	private static final int SUB_BITS = 4;
+	/**
+	 * Number of buckets for each power of two
+	 * */
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	/**
+	 * Number of buckets covering all non-negative long values
+	 * */
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+	/**
+	 * Normal quantile for a two-sided 95% confidence interval
+	 * */
+	private static final double Z_95 = 1.959964;
+	/**
+	 * Number of values added
+	 * */
+	private long count;
+	/**
+	 * Mean of the values added
+	 * */
+	private double mean;
+	/**
+	 * Sum of squared differences from the mean
+	 * */
+	private double m2;
+	/**
+	 * Smallest value added
+	 * */
+	private long min = Long.MAX_VALUE;
+	/**
+	 * Largest value added
+	 * */
+	private long max = Long.MIN_VALUE;
+	/**
+	 * Number of values in each histogram bucket
+	 * */
+	private final long[] buckets = new long[BUCKETS];
+
+  /**
+   * Adds a value to this summary.
+   * @param value
+   *   non-negative value to add
+   * @throws IllegalArgumentException
+   *   if the value is negative
+   */
+  public void add(long value)
+  {
+	  if(value < 0)
+	  {
+		  throw new IllegalArgumentException("Negative value: " + value);
+	  }
+	  count += 1;
+	  double delta = value - mean;
+	  mean += delta / count;
+	  m2 += delta * (value - mean);
+	  min = Math.min(min, value);
+	  max = Math.max(max, value);
+	  buckets[bucketOf(value)] += 1;
+  }
+
+  /**
+   * Adds all values summarized by another instance to this one.  The
+   * other instance is not modified.
+   * @param other
+   *   summary to merge into this one
+   */
+  public void merge(StreamingStats other)
+  {
+	  if(other.count == 0)
+	  {
+		  return;
+	  }
+	  long total = count + other.count;
+	  double delta = other.mean - mean;
+	  m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+	  mean += delta * other.count / total;
+	  count = total;
+	  min = Math.min(min, other.min);
+	  max = Math.max(max, other.max);
+	  for(int i = 0; i < BUCKETS; i++)
+	  {
+		  buckets[i] += other.buckets[i];
+	  }
+  }
+
+  /**
+   * Returns the number of values added.
+   * @return
+   *   number of values
+   */
+  public long getCount()
+  {
+	  return count;
+  }
+
+  /**
+   * Returns the mean of the values added, or zero if there are none.
+   * @return
+   *   mean value
+   */
+  public double getMean()
+  {
+	  return mean;
+  }
+
+  /**
+   * Returns the sample standard deviation of the values added, or zero if
+   * there are fewer than two.
+   * @return
+   *   standard deviation
+   */
+  public double getStandardDeviation()
+  {
+	  if(count < 2)
+	  {
+		  return 0;
+	  }
+	  return Math.sqrt(m2 / (count - 1));
+  }
+
+  /**
+   * Returns half the width of a 95% confidence interval for the mean,
+   * using the normal approximation.  The interval is the mean plus or minus
+   * this value.
+   * @return
+   *   half width of the confidence interval
+   */
+  public double getConfidenceHalfWidth()
+  {
+	  if(count < 2)
+	  {
+		  return Double.POSITIVE_INFINITY;
+	  }
+	  return Z_95 * getStandardDeviation() / Math.sqrt(count);
+  }
+
+  /**
+   * Returns the smallest value added.
+   * @return
+   *   minimum value, or zero if there are none
+   */
+  public long getMin()
+  {
+	  return count == 0 ? 0 : min;
+  }
+
+  /**
+   * Returns the largest value added.
+   * @return
+   *   maximum value, or zero if there are none
+   */
+  public long getMax()
+  {
+	  return count == 0 ? 0 : max;
+  }
+
+  /**
+   * Returns an estimate of the given quantile of the values added.
+   * @param q
+   *   quantile between 0 and 1, for example 0.5 for the median
+   * @return
+   *   estimated quantile, or zero if there are no values
+   */
+  public long getQuantile(double q)
+  {
+	  if(q < 0 || q > 1)
+	  {
+		  throw new IllegalArgumentException("Quantile out of range: " + q);
+	  }
+	  if(count == 0)
+	  {
+		  return 0;
+	  }
+	  long rank = Math.max(1, (long) Math.ceil(q * count));
+	  long seen = 0;
+	  int i = 0;
+	  while(seen + buckets[i] < rank)
+	  {
+		  seen += buckets[i];
+		  i += 1;
+	  }
+	  long low = lowerBound(i);
+	  long high = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+	  long mid = low + (high - low) / 2;
+	  return Math.max(min, Math.min(max, mid));
+  }
+
+  /**
+   * Returns a one-line report of this summary: count, mean with its 95%
+   * confidence interval, and selected quantiles.
+   * @return
+   *   summary as text
+   */
+  @Override
+  public String toString()
+  {
+	  return String.format("n=%d mean=%.2f +-%.2f min=%d p50=%d p90=%d p99=%d max=%d",
+			  count, mean, getConfidenceHalfWidth(), getMin(),
+			  getQuantile(0.5), getQuantile(0.9), getQuantile(0.99), getMax());
+  }
+
+  /**
+   * Returns the index of the histogram bucket containing the given value.
+   * Values below <code>SUB_BUCKETS</code> have a bucket each; larger
+   * values share a bucket with others having the same leading bit and
+   * the same <code>SUB_BITS</code> bits below it.
+   * @param value
+   *   non-negative value
+   * @return
+   *   bucket index
+   */
+  private static int bucketOf(long value)
+  {
+	  if(value < SUB_BUCKETS)
+	  {
+		  return (int) value;
+	  }
+	  int exponent = 63 - Long.numberOfLeadingZeros(value);
+	  int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+	  return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Returns the smallest value in the given histogram bucket.
+   * @param index
+   *   bucket index
+   * @return
+   *   lower bound of the bucket
+   */
+  private static long lowerBound(int index)
+  {
+	  if(index < SUB_BUCKETS)
+	  {
+		  return index;
+	  }
+	  int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+	  long sub = index % SUB_BUCKETS;
+	  return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+  }
+}
@@ -0,0 +1,234 @@
+package hw3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import api.Direction;
+
+/**
+ * Compares move strategies by playing each of them on the same set of
+ * seeded games.  The game with a given seed starts from the same grid and
+ * draws the same tiles for every strategy, as long as the strategies make
+ * the same moves.  Games are played in parallel on the common fork/join
+ * pool, and only summary statistics are kept, so the memory used does
+ * not depend on the number of games.
+ *
+ * @author BennyOoi
+ */
+public class Tournament
+{
+	/**
+	 * Size of the grid of each game
+	 * */
+	private final int size;
+	/**
+	 * Rules shared by all games
+	 * */
+	private final GameUtil config;
+	/**
+	 * Seed of each game
+	 * */
+	private final long[] seeds;
+	/**
+	 * Number of turns after which a game is stopped
+	 * */
+	private final int maxTurns;
+
+  /**
+   * Constructs a tournament over games with the given seeds.
+   * @param givenSize
+   *   size of the grid for each game
+   * @param givenConfig
+   *   given instance of GameUtil, shared by all games
+   * @param givenSeeds
+   *   seed of the random number generator of each game
+   * @param givenMaxTurns
+   *   number of turns after which a game is stopped even if it is not over
+   */
+  public Tournament(int givenSize, GameUtil givenConfig, long[] givenSeeds, int givenMaxTurns)
+  {
+	  size = givenSize;
+	  config = givenConfig;
+	  seeds = givenSeeds.clone();
+	  maxTurns = givenMaxTurns;
+  }
+
+  /**
+   * Constructs a tournament over the given number of games, seeded
+   * 0, 1, 2, and so on, with no limit on the length of a game.
+   * @param givenSize
+   *   size of the grid for each game
+   * @param givenConfig
+   *   given instance of GameUtil, shared by all games
+   * @param games
+   *   number of games
+   */
+  public Tournament(int givenSize, GameUtil givenConfig, int games)
+  {
+	  this(givenSize, givenConfig,
+			  IntStream.range(0, games).asLongStream().toArray(), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Plays every game with the given strategy.
+   * @param strategy
+   *   strategy to evaluate
+   * @return
+   *   statistics over all games
+   */
+  public Result run(MoveStrategy strategy)
+  {
+	  return IntStream.range(0, seeds.length).parallel().collect(
+			  () -> new Result(strategy.getName()),
+			  (result, i) -> play(strategy, seeds[i], result),
+			  Result::merge);
+  }
+
+  /**
+   * Plays every game with each of the given strategies in turn.
+   * @param strategies
+   *   strategies to evaluate
+   * @return
+   *   statistics for each strategy, in the given order
+   */
+  public List<Result> runAll(List<? extends MoveStrategy> strategies)
+  {
+	  List<Result> results = new ArrayList<Result>();
+	  for(MoveStrategy strategy : strategies)
+	  {
+		  results.add(run(strategy));
+	  }
+	  return results;
+  }
+
+  /**
+   * Plays one game with the given strategy and adds its outcome to the
+   * given result.  The game ends when it is over, when the strategy
+   * returns null or an illegal move, or after <code>maxTurns</code> turns.
+   * @param strategy
+   *   strategy choosing the moves
+   * @param seed
+   *   seed of the game
+   * @param result
+   *   statistics to update
+   */
+  private void play(MoveStrategy strategy, long seed, Result result)
+  {
+	  Game game = new Game(size, config, new CheckpointRandom(seed));
+	  // the strategy's generator is derived from the seed, but distinct from the game's
+	  Random moveRand = new Random(~seed);
+	  Direction[] move = new Direction[1];
+	  int turns = 0;
+	  while(turns < maxTurns)
+	  {
+		  move[0] = strategy.chooseMove(game, moveRand);
+		  MoveSummary summary = game.applyMoves(move, 0, 1);
+		  turns += summary.getTurnsApplied();
+		  if(summary.getTurnsApplied() == 0 || summary.isGameOver())
+		  {
+			  break;
+		  }
+	  }
+	  result.score.add(game.getScore());
+	  result.maxTile.add(game.getMaxTile());
+	  result.turns.add(turns);
+  }
+
+  /**
+   * Statistics gathered for one strategy over all games of a tournament.
+   */
+  public static class Result
+  {
+	  /**
+	   * Name of the strategy
+	   * */
+	  private final String name;
+	  /**
+	   * Final score of each game
+	   * */
+	  private final StreamingStats score = new StreamingStats();
+	  /**
+	   * Largest tile value at the end of each game
+	   * */
+	  private final StreamingStats maxTile = new StreamingStats();
+	  /**
+	   * Number of turns played in each game
+	   * */
+	  private final StreamingStats turns = new StreamingStats();
+
+	  /**
+	   * Constructs an empty result for the named strategy.
+	   * @param givenName
+	   *   name of the strategy
+	   */
+	  public Result(String givenName)
+	  {
+		  name = givenName;
+	  }
+
+	  /**
+	   * Adds the statistics of another result to this one.
+	   * @param other
+	   *   result to merge into this one
+	   */
+	  public void merge(Result other)
+	  {
+		  score.merge(other.score);
+		  maxTile.merge(other.maxTile);
+		  turns.merge(other.turns);
+	  }
+
+	  /**
+	   * Returns the name of the strategy.
+	   * @return
+	   *   strategy name
+	   */
+	  public String getName()
+	  {
+		  return name;
+	  }
+
+	  /**
+	   * Returns the statistics of the final scores.
+	   * @return
+	   *   score statistics
+	   */
+	  public StreamingStats getScore()
+	  {
+		  return score;
+	  }
+
+	  /**
+	   * Returns the statistics of the largest tile of each game.
+	   * @return
+	   *   largest tile statistics
+	   */
+	  public StreamingStats getMaxTile()
+	  {
+		  return maxTile;
+	  }
+
+	  /**
+	   * Returns the statistics of the number of turns of each game.
+	   * @return
+	   *   game length statistics
+	   */
+	  public StreamingStats getTurns()
+	  {
+		  return turns;
+	  }
+
+	  /**
+	   * Returns a multi-line report of this result.
+	   * @return
+	   *   report as text
+	   */
+	  @Override
+	  public String toString()
+	  {
+		  return name + "\n  score:    " + score + "\n  max tile: " + maxTile
+				  + "\n  turns:    " + turns;
+	  }
+  }
+}